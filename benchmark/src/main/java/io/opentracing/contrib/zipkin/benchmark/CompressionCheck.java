@@ -0,0 +1,63 @@
+package io.opentracing.contrib.zipkin.benchmark;
+
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.contrib.zipkin.ZipkinTracer;
+import io.opentracing.contrib.zipkin.reporter.GzipHttpSender;
+import io.opentracing.contrib.zipkin.reporter.V2Encoders;
+import io.opentracing.tag.Tags;
+import zipkin.reporter.AsyncReporter;
+import zipkin.reporter.InMemoryReporterMetrics;
+
+/**
+ * Reports spans through a {@link GzipHttpSender} to a {@link FakeCollector}, and prints the payload sizes it received.
+ * Exits with a failure unless the collector received every span.
+ *
+ * sbt "benchmark/runMain io.opentracing.contrib.zipkin.benchmark.CompressionCheck [spans]"
+ */
+public final class CompressionCheck {
+
+    private CompressionCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        try (FakeCollector collector = new FakeCollector()) {
+            final GzipHttpSender sender = GzipHttpSender.builder(collector.v2Endpoint()).build();
+            final InMemoryReporterMetrics metrics = new InMemoryReporterMetrics();
+            final AsyncReporter<zipkin2.Span> reporter = AsyncReporter.builder(sender).metrics(metrics).build(V2Encoders.JSON);
+            final Tracer tracer = ZipkinTracer.v2Builder(reporter).build();
+            for (int i = 0; i < count; i++) {
+                Span span = tracer.buildSpan("get-document").withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT).start();
+                span.setTag(Tags.HTTP_URL.getKey(), "http://documents.internal/documents/" + i);
+                span.setTag(Tags.HTTP_STATUS.getKey(), 200);
+                span.setTag(Tags.PEER_SERVICE.getKey(), "documents");
+                span.finish();
+                // flush as we go, so that the reporter's queue never fills up and drops spans
+                if (i % 1000 == 999) {
+                    reporter.flush();
+                }
+            }
+            for (int i = 0; i < 100 && collector.spans() + metrics.spansDropped() < count; i++) {
+                reporter.flush();
+            }
+            reporter.close();
+            sender.close();
+            System.out.printf(
+                "spans %d/%d (%d dropped by reporter), messages %d, payload bytes %d, uncompressed bytes %d (%.1f%%), final compression level %d%n",
+                collector.spans(),
+                count,
+                metrics.spansDropped(),
+                collector.messages(),
+                collector.payloadBytes(),
+                collector.uncompressedBytes(),
+                100.0 * collector.payloadBytes() / Math.max(1, collector.uncompressedBytes()),
+                sender.compressionLevel()
+            );
+            if (collector.spans() != count) {
+                System.exit(1);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,261 @@
+package io.opentracing.contrib.zipkin.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import zipkin.Codec;
+import zipkin2.codec.SpanBytesDecoder;
+
+/**
+ * An in-process stand-in for a Zipkin collector's HTTP API, which records the messages and spans it receives.
+ * It accepts v1 spans at /api/v1/spans and v2 spans at /api/v2/spans, optionally gzip-compressed.
+ * Responses can be delayed, and a fraction of messages rejected, to simulate a slow or failing collector.
+ * Messages are fully decoded, unless only counting spans, which is much cheaper for load tests that share its CPUs.
+ * The CPU time spent handling messages is recorded, so that it can be told apart from the cost of tracing.
+ */
+public final class FakeCollector implements AutoCloseable {
+
+    private final HttpServer server;
+    private final long latencyMillis;
+    private final double failureRate;
+    private final boolean decode;
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong spans = new AtomicLong();
+    private final AtomicLong payloadBytes = new AtomicLong();
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong cpuNanos = new AtomicLong();
+
+    public FakeCollector() throws IOException {
+        this(0, 0, true);
+    }
+
+    /**
+     * @param decode whether to decode spans, or only count them
+     */
+    public FakeCollector(long latencyMillis, double failureRate, boolean decode) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.failureRate = failureRate;
+        this.decode = decode;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-collector");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.createContext("/api/", this::handle);
+        server.start();
+    }
+
+    public URL v1Endpoint() {
+        return endpoint("/api/v1/spans");
+    }
+
+    public URL v2Endpoint() {
+        return endpoint("/api/v2/spans");
+    }
+
+    private URL endpoint(String path) {
+        try {
+            return new URL("http", "127.0.0.1", server.getAddress().getPort(), path);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        final long cpuStart = threadCpuNanos();
+        try {
+            final byte[] payload = readAll(exchange.getRequestBody());
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                failures.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            final CountingInputStream body = new CountingInputStream(
+                "gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))
+                    ? new GZIPInputStream(new ByteArrayInputStream(payload))
+                    : new ByteArrayInputStream(payload)
+            );
+            final boolean thrift = "application/x-thrift".equals(exchange.getRequestHeaders().getFirst("Content-Type"));
+            final long count;
+            if (!decode) {
+                count = thrift ? countThriftSpans(body) : countJsonSpans(body);
+            } else {
+                final byte[] bytes = readAll(body);
+                if (bytes.length == 0) {
+                    count = 0;
+                } else if (exchange.getRequestURI().getPath().startsWith("/api/v2/")) {
+                    count = SpanBytesDecoder.JSON_V2.decodeList(bytes).size();
+                } else if (thrift) {
+                    count = Codec.THRIFT.readSpans(bytes).size();
+                } else {
+                    count = Codec.JSON.readSpans(bytes).size();
+                }
+            }
+            messages.incrementAndGet();
+            spans.addAndGet(count);
+            payloadBytes.addAndGet(payload.length);
+            uncompressedBytes.addAndGet(body.count);
+            exchange.sendResponseHeaders(202, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.sendResponseHeaders(503, -1);
+        } catch (RuntimeException e) {
+            exchange.sendResponseHeaders(400, -1);
+        } finally {
+            exchange.close();
+            cpuNanos.addAndGet(threadCpuNanos() - cpuStart);
+        }
+    }
+
+    private static long threadCpuNanos() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Counts the objects at the top level of a JSON list, without parsing them.
+     */
+    private static long countJsonSpans(InputStream in) throws IOException {
+        final byte[] buffer = new byte[8 * 1024];
+        long count = 0;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                final byte b = buffer[i];
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '\\') {
+                        escaped = true;
+                    } else if (b == '"') {
+                        inString = false;
+                    }
+                } else if (b == '"') {
+                    inString = true;
+                } else if (b == '{' || b == '[') {
+                    if (b == '{' && depth == 1) {
+                        count++;
+                    }
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the size from the header of a Thrift list, and skips the rest.
+     */
+    private static long countThriftSpans(InputStream in) throws IOException {
+        final byte[] header = new byte[5];
+        int read = 0;
+        while (read < header.length) {
+            final int n = in.read(header, read, header.length - read);
+            if (n == -1) {
+                return 0;
+            }
+            read += n;
+        }
+        final byte[] buffer = new byte[8 * 1024];
+        while (in.read(buffer) != -1) {
+        }
+        return (header[1] & 0xffL) << 24 | (header[2] & 0xff) << 16 | (header[3] & 0xff) << 8 | (header[4] & 0xff);
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    public long messages() {
+        return messages.get();
+    }
+
+    /**
+     * Messages rejected to simulate failures.
+     */
+    public long failures() {
+        return failures.get();
+    }
+
+    /**
+     * CPU time spent handling messages, which competes with an in-process workload.
+     */
+    public long cpuNanos() {
+        return cpuNanos.get();
+    }
+
+    public long spans() {
+        return spans.get();
+    }
+
+    /**
+     * Bytes received on the wire, compressed or not.
+     */
+    public long payloadBytes() {
+        return payloadBytes.get();
+    }
+
+    public long uncompressedBytes() {
+        return uncompressedBytes.get();
+    }
+
+    public void close() {
+        server.stop(0);
+    }
+
+}
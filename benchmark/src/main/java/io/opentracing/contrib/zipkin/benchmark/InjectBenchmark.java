@@ -0,0 +1,60 @@
+package io.opentracing.contrib.zipkin.benchmark;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.contrib.zipkin.ZipkinTracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMap;
+import io.opentracing.propagation.TextMapInjectAdapter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import zipkin.reporter.Reporter;
+
+/**
+ * Injects the same span context repeatedly, as when one span fans out to many downstream requests.
+ *
+ * sbt "benchmark/jmh:run InjectBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class InjectBenchmark {
+
+    private Tracer tracer;
+    private SpanContext context;
+    // reused, so that only the inject itself is measured; replacing the values of existing keys doesn't allocate
+    private final Map<String, String> headers = new HashMap<>();
+    private final TextMap carrier = new TextMapInjectAdapter(headers);
+
+    @Setup
+    public void setup() {
+        tracer = ZipkinTracer.builder(Reporter.NOOP).build();
+        Span parent = tracer.buildSpan("parent").start();
+        Span span = tracer.buildSpan("aggregate").asChildOf(parent).start();
+        span.setBaggageItem("user-id", "12345");
+        span.setBaggageItem("request source", "web/app");
+        context = span.context();
+    }
+
+    @Benchmark
+    public Map<String, String> httpHeaders() {
+        tracer.inject(context, Format.Builtin.HTTP_HEADERS, carrier);
+        return headers;
+    }
+
+    @Benchmark
+    public Map<String, String> textMap() {
+        tracer.inject(context, Format.Builtin.TEXT_MAP, carrier);
+        return headers;
+    }
+
+}
@@ -0,0 +1,54 @@
+package io.opentracing.contrib.zipkin.benchmark;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, thread-safe histogram of nanosecond latencies, with about 3% precision.
+ * Memory does not grow with the number of values, so it can record for the length of a soak test.
+ */
+final class LatencyHistogram {
+
+    private static final int subBucketBits = 5;
+    private static final int subBuckets = 1 << subBucketBits;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - subBucketBits) * subBuckets);
+
+    void record(long nanos) {
+        counts.incrementAndGet(index(Math.max(0, nanos)));
+    }
+
+    private static int index(long value) {
+        // keep the top subBucketBits + 1 bits of the value, and its magnitude
+        final int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - subBucketBits - 1);
+        return shift * subBuckets + (int) (value >>> shift);
+    }
+
+    private static long lowerBound(int index) {
+        final int shift = Math.max(0, index / subBuckets - 1);
+        return (long) (index - shift * subBuckets) << shift;
+    }
+
+    long count() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * The lower bound of the bucket containing the given percentile, in nanoseconds.
+     */
+    long percentile(double percentile) {
+        final long target = (long) Math.ceil(count() * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= Math.max(1, target)) {
+                return lowerBound(i);
+            }
+        }
+        return 0;
+    }
+
+}
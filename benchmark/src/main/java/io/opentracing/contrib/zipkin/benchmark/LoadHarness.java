@@ -0,0 +1,435 @@
+package io.opentracing.contrib.zipkin.benchmark;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.contrib.zipkin.ZipkinTracer;
+import io.opentracing.contrib.zipkin.reporter.GzipHttpSender;
+import io.opentracing.contrib.zipkin.reporter.V2Encoders;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMapExtractAdapter;
+import io.opentracing.propagation.TextMapInjectAdapter;
+import io.opentracing.tag.Tags;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.zip.Deflater;
+import zipkin.reporter.AsyncReporter;
+import zipkin.reporter.Callback;
+import zipkin.reporter.Encoder;
+import zipkin.reporter.Encoding;
+import zipkin.reporter.InMemoryReporterMetrics;
+import zipkin.reporter.Sender;
+
+/**
+ * Drives a synthetic concurrent workload through {@link ZipkinTracer}, reporting to a {@link FakeCollector}, and
+ * prints the throughput, latency percentiles, allocation and GC of each phase, and how many spans were dropped.
+ * The same workload first runs untraced, so the cost of tracing is the difference between the two phases.
+ * The collector shares the workload's CPUs, so it only counts spans instead of decoding them, and its CPU time is
+ * printed separately, to be subtracted when attributing overhead to tracing.
+ *
+ * Each request extracts an incoming B3 context with baggage, starts a server span, and makes a number of downstream
+ * calls, each a client span whose headers, including baggage, are injected and extracted again by a downstream server
+ * span. The incoming headers are prepared before the run, since the caller's tracing is not part of the service's cost.
+ *
+ * sbt "benchmark/runMain io.opentracing.contrib.zipkin.benchmark.LoadHarness --threads 64 --duration 60"
+ *
+ * Options, with defaults:
+ *   --threads 16               concurrent workers
+ *   --virtual false            run workers on virtual threads (Java 21+)
+ *   --duration 30              seconds for each phase
+ *   --warmup 10                seconds of traced warmup before measuring
+ *   --fanout 10                downstream calls per request
+ *   --work-micros 20           simulated CPU work per downstream call
+ *   --model v2                 span model reported, v1 or v2
+ *   --sender gzip              gzip, to post adaptively compressed messages; stored, to post them gzip-framed but
+ *                              uncompressed; or discard, to count and drop them without posting, which leaves only
+ *                              the cost of recording and encoding spans
+ *   --collector-latency 0      milliseconds the collector delays each response
+ *   --collector-failure-rate 0 fraction of messages the collector rejects
+ */
+public final class LoadHarness {
+
+    private static final List<String> OPTIONS = Arrays.asList(
+        "threads",
+        "virtual",
+        "duration",
+        "warmup",
+        "fanout",
+        "work-micros",
+        "model",
+        "sender",
+        "collector-latency",
+        "collector-failure-rate"
+    );
+
+    private final int threads;
+    private final boolean virtual;
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final int fanout;
+    private final long workNanos;
+    // cycled through by each worker, so that requests join different traces
+    private final List<Map<String, String>> incomingHeaders;
+
+    private LoadHarness(Map<String, String> options) {
+        threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+        virtual = Boolean.parseBoolean(options.getOrDefault("virtual", "false"));
+        durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", "30")));
+        warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("warmup", "10")));
+        fanout = Integer.parseInt(options.getOrDefault("fanout", "10"));
+        workNanos = TimeUnit.MICROSECONDS.toNanos(Long.parseLong(options.getOrDefault("work-micros", "20")));
+        incomingHeaders = new ArrayList<>();
+        final Random random = new Random();
+        for (int i = 0; i < 1024; i++) {
+            final Map<String, String> headers = new HashMap<>();
+            headers.put("X-B3-TraceId", Long.toHexString(random.nextLong()));
+            headers.put("X-B3-SpanId", Long.toHexString(random.nextLong()));
+            headers.put("X-B3-Baggage-request-id", Integer.toString(i));
+            headers.put("X-B3-Baggage-request+source", "web%2Fapp");
+            incomingHeaders.add(headers);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || !OPTIONS.contains(args[i].substring(2))) {
+                throw new IllegalArgumentException("Unknown option " + args[i] + ", expected one of " + OPTIONS);
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for option " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        final LoadHarness harness = new LoadHarness(options);
+        final boolean v2 = !"v1".equals(options.getOrDefault("model", "v2"));
+        final long collectorLatency = Long.parseLong(options.getOrDefault("collector-latency", "0"));
+        final double collectorFailureRate = Double.parseDouble(options.getOrDefault("collector-failure-rate", "0"));
+        final String senderName = options.getOrDefault("sender", "gzip");
+
+        try (FakeCollector collector = new FakeCollector(collectorLatency, collectorFailureRate, false)) {
+            final URL endpoint = v2 ? collector.v2Endpoint() : collector.v1Endpoint();
+            final Sender sender;
+            final LongSupplier spansReceived;
+            switch (senderName) {
+                case "gzip":
+                    sender = GzipHttpSender.builder(endpoint).build();
+                    spansReceived = collector::spans;
+                    break;
+                case "stored":
+                    sender = GzipHttpSender.builder(endpoint)
+                        .withCompressionLevel(Deflater.NO_COMPRESSION, Deflater.NO_COMPRESSION, Deflater.NO_COMPRESSION)
+                        .build();
+                    spansReceived = collector::spans;
+                    break;
+                case "discard":
+                    final DiscardingSender discardingSender = new DiscardingSender();
+                    sender = discardingSender;
+                    spansReceived = discardingSender::spans;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown sender " + senderName + ", expected gzip, stored or discard");
+            }
+            final InMemoryReporterMetrics metrics = new InMemoryReporterMetrics();
+            final AsyncReporter.Builder reporterBuilder = AsyncReporter.builder(sender).metrics(metrics);
+            final AsyncReporter<?> reporter;
+            final Tracer tracer;
+            if (v2) {
+                final AsyncReporter<zipkin2.Span> v2Reporter = reporterBuilder.build(V2Encoders.JSON);
+                reporter = v2Reporter;
+                tracer = ZipkinTracer.v2Builder(v2Reporter).build();
+            } else {
+                final AsyncReporter<zipkin.Span> v1Reporter = reporterBuilder.build(Encoder.JSON);
+                reporter = v1Reporter;
+                tracer = ZipkinTracer.builder(v1Reporter).build();
+            }
+
+            System.out.printf(
+                "%d %s threads, fanout %d, %d us work per call, %s spans, %s sender, collector latency %d ms, failure rate %.2f%n",
+                harness.threads,
+                harness.virtual ? "virtual" : "platform",
+                harness.fanout,
+                TimeUnit.NANOSECONDS.toMicros(harness.workNanos),
+                v2 ? "v2" : "v1",
+                senderName,
+                collectorLatency,
+                collectorFailureRate
+            );
+            if (harness.warmupNanos > 0) {
+                harness.run(null, collector, harness.warmupNanos);
+                harness.run(tracer, collector, harness.warmupNanos).print("warmup");
+            }
+            harness.run(null, collector, harness.durationNanos).print("untraced");
+            final Result traced = harness.run(tracer, collector, harness.durationNanos);
+            traced.print("traced");
+
+            // the queued spans metric can stay above zero after the queue drains, so flush until the sender or
+            // collector has accounted for every span instead
+            for (int i = 0; i < 100 && spansReceived.getAsLong() + metrics.spansDropped() < metrics.spans(); i++) {
+                reporter.flush();
+            }
+            reporter.close();
+            sender.close();
+            System.out.printf(
+                "spans reported %d, received %d, dropped by reporter %d, messages dropped %d, collector failures %d%n",
+                metrics.spans(),
+                spansReceived.getAsLong(),
+                metrics.spansDropped(),
+                metrics.messagesDropped(),
+                collector.failures()
+            );
+            if (sender instanceof GzipHttpSender) {
+                System.out.printf(
+                    "payload bytes %d, uncompressed %d, final compression level %d%n",
+                    collector.payloadBytes(),
+                    collector.uncompressedBytes(),
+                    ((GzipHttpSender) sender).compressionLevel()
+                );
+            }
+        }
+    }
+
+    private ExecutorService executor() {
+        if (virtual) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new UnsupportedOperationException("Virtual threads require Java 21 or later", e);
+            }
+        }
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Runs the workload for the given time, untraced when the tracer is null.
+     */
+    private Result run(Tracer tracer, FakeCollector collector, long nanos) throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final AtomicLong allocatedBytes = new AtomicLong();
+        final AtomicLong allocationSamples = new AtomicLong();
+        final long gcCount = gcCount();
+        final long gcMillis = gcMillis();
+        final long collectorCpuNanos = collector.cpuNanos();
+        final ExecutorService executor = executor();
+        final long start = System.nanoTime();
+        final long deadline = start + nanos;
+        final List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> {
+                final long allocatedStart = allocatedBytes();
+                int request = 0;
+                long requestStart = System.nanoTime();
+                while (requestStart < deadline) {
+                    request(tracer, incomingHeaders.get(request++ & (incomingHeaders.size() - 1)));
+                    final long requestEnd = System.nanoTime();
+                    histogram.record(requestEnd - requestStart);
+                    requestStart = requestEnd;
+                }
+                final long allocatedEnd = allocatedBytes();
+                if (allocatedStart >= 0 && allocatedEnd >= 0) {
+                    allocatedBytes.addAndGet(allocatedEnd - allocatedStart);
+                    allocationSamples.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        final long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        return new Result(
+            histogram,
+            elapsed,
+            allocationSamples.get() == threads ? allocatedBytes.get() : -1,
+            gcCount() - gcCount,
+            gcMillis() - gcMillis,
+            collector.cpuNanos() - collectorCpuNanos
+        );
+    }
+
+    private void request(Tracer tracer, Map<String, String> incoming) {
+        if (tracer == null) {
+            for (int i = 0; i < fanout; i++) {
+                work();
+            }
+            return;
+        }
+
+        final SpanContext parent = tracer.extract(Format.Builtin.HTTP_HEADERS, new TextMapExtractAdapter(incoming));
+        final Span server = tracer.buildSpan("aggregate")
+            .asChildOf(parent)
+            .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
+            .withTag(Tags.HTTP_METHOD.getKey(), "GET")
+            .withTag(Tags.HTTP_URL.getKey(), "http://aggregator.internal/documents")
+            .start();
+        // spans don't inherit baggage from their parent, so carry it along as an application would
+        for (Map.Entry<String, String> baggageItem : parent.baggageItems()) {
+            server.setBaggageItem(baggageItem.getKey(), baggageItem.getValue());
+        }
+        for (int i = 0; i < fanout; i++) {
+            final Span client = tracer.buildSpan("fetch")
+                .asChildOf(server)
+                .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+                .start();
+            client.setTag(Tags.PEER_SERVICE.getKey(), "documents");
+            client.setTag(Tags.PEER_PORT.getKey(), 8080);
+            for (Map.Entry<String, String> baggageItem : server.context().baggageItems()) {
+                client.setBaggageItem(baggageItem.getKey(), baggageItem.getValue());
+            }
+            final Map<String, String> headers = new HashMap<>();
+            tracer.inject(client.context(), Format.Builtin.HTTP_HEADERS, new TextMapInjectAdapter(headers));
+
+            final SpanContext downstreamParent = tracer.extract(Format.Builtin.HTTP_HEADERS, new TextMapExtractAdapter(headers));
+            final Span downstream = tracer.buildSpan("fetch")
+                .asChildOf(downstreamParent)
+                .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
+                .start();
+            work();
+            downstream.log("document.loaded");
+            downstream.setTag(Tags.HTTP_STATUS.getKey(), 200);
+            downstream.finish();
+
+            client.setTag(Tags.HTTP_STATUS.getKey(), 200);
+            client.finish();
+        }
+        server.log("response.sent");
+        server.setTag(Tags.HTTP_STATUS.getKey(), 200);
+        server.finish();
+    }
+
+    private void work() {
+        final long end = System.nanoTime() + workNanos;
+        while (System.nanoTime() < end) {
+        }
+    }
+
+    /**
+     * Bytes allocated by the current thread, or -1 if that is not supported, e.g. on virtual threads.
+     */
+    private static long allocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            try {
+                return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+            } catch (UnsupportedOperationException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, bean.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Counts and drops messages, to measure tracing without the cost of compressing and posting them.
+     */
+    private static final class DiscardingSender implements Sender {
+        private final AtomicLong spans = new AtomicLong();
+
+        public Encoding encoding() {
+            return Encoding.JSON;
+        }
+
+        public int messageMaxBytes() {
+            return 5 * 1024 * 1024;
+        }
+
+        public int messageSizeInBytes(List<byte[]> spans) {
+            return Encoding.JSON.listSizeInBytes(spans);
+        }
+
+        public void sendSpans(List<byte[]> spans, Callback callback) {
+            this.spans.addAndGet(spans.size());
+            callback.onComplete();
+        }
+
+        public CheckResult check() {
+            return CheckResult.OK;
+        }
+
+        public void close() {
+        }
+
+        long spans() {
+            return spans.get();
+        }
+    }
+
+    private static final class Result {
+        final LatencyHistogram histogram;
+        final long elapsedNanos;
+        final long allocatedBytes;
+        final long gcCount;
+        final long gcMillis;
+        final long collectorCpuNanos;
+
+        Result(
+            LatencyHistogram histogram,
+            long elapsedNanos,
+            long allocatedBytes,
+            long gcCount,
+            long gcMillis,
+            long collectorCpuNanos
+        ) {
+            this.histogram = histogram;
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+            this.collectorCpuNanos = collectorCpuNanos;
+        }
+
+        void print(String phase) {
+            final long requests = histogram.count();
+            final double seconds = elapsedNanos / 1e9;
+            System.out.printf(
+                "%-8s %10.0f req/s  p50 %8.1f us  p90 %8.1f us  p99 %8.1f us  p99.9 %8.1f us  max %8.1f us  " +
+                    "alloc %s  gc %d (%d ms, %.2f%%)  collector cpu %d ms (%.2f%%)%n",
+                phase,
+                requests / seconds,
+                histogram.percentile(50) / 1e3,
+                histogram.percentile(90) / 1e3,
+                histogram.percentile(99) / 1e3,
+                histogram.percentile(99.9) / 1e3,
+                histogram.percentile(100) / 1e3,
+                allocatedBytes < 0
+                    ? "n/a"
+                    : String.format("%.1f MB/s, %d B/req", allocatedBytes / seconds / 1e6, allocatedBytes / Math.max(1, requests)),
+                gcCount,
+                gcMillis,
+                100.0 * gcMillis / (elapsedNanos / 1e6),
+                TimeUnit.NANOSECONDS.toMillis(collectorCpuNanos),
+                100.0 * collectorCpuNanos / elapsedNanos
+            );
+        }
+    }
+
+}
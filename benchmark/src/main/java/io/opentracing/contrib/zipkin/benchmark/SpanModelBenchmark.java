@@ -0,0 +1,85 @@
+package io.opentracing.contrib.zipkin.benchmark;
+
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.contrib.zipkin.ZipkinTracer;
+import io.opentracing.contrib.zipkin.reporter.V2Encoders;
+import io.opentracing.tag.Tags;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import zipkin.Endpoint;
+import zipkin.reporter.Encoder;
+
+/**
+ * Compares finishing and encoding a typical client span in the Zipkin v1 and v2 models.
+ * Bytes per span for each model are printed at the end of each trial.
+ *
+ * sbt "benchmark/jmh:run SpanModelBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class SpanModelBenchmark {
+
+    private static final Endpoint endpoint = Endpoint.builder().serviceName("benchmark-service").ipv4(10 << 24 | 1).port(8080).build();
+
+    private zipkin.Span v1Span;
+    private zipkin2.Span v2Span;
+    private Tracer v1Tracer;
+    private Tracer v2Tracer;
+
+    @Setup
+    public void setup() {
+        v1Tracer = ZipkinTracer.builder(span -> v1Span = span).withEndpoint(endpoint).build();
+        v2Tracer = ZipkinTracer.v2Builder(span -> v2Span = span).withEndpoint(endpoint).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf(
+            "%nbytes per span: v1 JSON %d, v1 Thrift %d, v2 JSON %d%n",
+            Encoder.JSON.encode(v1Span).length,
+            Encoder.THRIFT.encode(v1Span).length,
+            V2Encoders.JSON.encode(v2Span).length
+        );
+    }
+
+    private static void record(Tracer tracer) {
+        Span span = tracer.buildSpan("get-document").withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT).start();
+        span.setTag(Tags.COMPONENT.getKey(), "http-client");
+        span.setTag(Tags.HTTP_METHOD.getKey(), "GET");
+        span.setTag(Tags.HTTP_URL.getKey(), "http://documents.internal/documents/1234");
+        span.setTag(Tags.HTTP_STATUS.getKey(), 200);
+        span.setTag(Tags.PEER_SERVICE.getKey(), "documents");
+        span.setTag(Tags.PEER_PORT.getKey(), 443);
+        span.log("request.sent");
+        span.log("response.received");
+        span.finish();
+    }
+
+    @Benchmark
+    public byte[] v1Json() {
+        record(v1Tracer);
+        return Encoder.JSON.encode(v1Span);
+    }
+
+    @Benchmark
+    public byte[] v1Thrift() {
+        record(v1Tracer);
+        return Encoder.THRIFT.encode(v1Span);
+    }
+
+    @Benchmark
+    public byte[] v2Json() {
+        record(v2Tracer);
+        return V2Encoders.JSON.encode(v2Span);
+    }
+
+}
@@ -0,0 +1,73 @@
+package io.opentracing.contrib.zipkin;
+
+import io.opentracing.propagation.TextMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Header names and values encoded once per span context, so that injecting them is only a series of puts.
+ */
+final class EncodedHeaders {
+
+    private static final char[] hexDigits = "0123456789abcdef".toCharArray();
+
+    private final String prefix;
+    private final UnaryOperator<String> encoder;
+    private final String[] names;
+    private final String[] values;
+
+    /**
+     * Encodes the B3 identifiers and baggage of a context, with every name prefixed, and baggage encoded, as the
+     * propagation format requires.
+     */
+    EncodedHeaders(ZipkinSpanContext spanContext, String prefix, UnaryOperator<String> encoder) {
+        this.prefix = prefix;
+        this.encoder = encoder;
+        final Long parentId = spanContext.getParentId();
+        int size = parentId == null ? 2 : 3;
+        for (Map.Entry<String, String> baggageItem : spanContext.baggageItems()) {
+            size++;
+        }
+        names = new String[size];
+        values = new String[size];
+        int i = 0;
+        names[i] = prefix + "TraceId";
+        values[i++] = toLowerHex(spanContext.getTraceId());
+        names[i] = prefix + "SpanId";
+        values[i++] = toLowerHex(spanContext.getId());
+        if (parentId != null) {
+            names[i] = prefix + "ParentSpanId";
+            values[i++] = toLowerHex(parentId);
+        }
+        for (Map.Entry<String, String> baggageItem : spanContext.baggageItems()) {
+            names[i] = prefix + "Baggage-" + encoder.apply(baggageItem.getKey());
+            values[i++] = encoder.apply(baggageItem.getValue());
+        }
+    }
+
+    /**
+     * Whether these headers were encoded with the given prefix and encoder.
+     */
+    boolean encodedWith(String prefix, UnaryOperator<String> encoder) {
+        return this.encoder == encoder && this.prefix.equals(prefix);
+    }
+
+    void inject(TextMap carrier) {
+        for (int i = 0; i < names.length; i++) {
+            carrier.put(names[i], values[i]);
+        }
+    }
+
+    /**
+     * Lower hex, zero-padded to 16 characters as B3 expects.
+     */
+    private static String toLowerHex(long value) {
+        final char[] chars = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            chars[i] = hexDigits[(int) value & 0xf];
+            value >>>= 4;
+        }
+        return new String(chars);
+    }
+
+}
@@ -9,8 +9,12 @@ import java.net.Inet6Address;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import zipkin.Annotation;
@@ -20,13 +24,27 @@ import zipkin.Endpoint;
 import zipkin.Span;
 import zipkin.reporter.Reporter;
 
+/**
+ * Records span state as it is set, and converts it to a Zipkin span once finished.
+ * If a v2 reporter is present, the span is built directly in the Zipkin v2 model; otherwise the v1 model is used.
+ */
 public class ZipkinSpan implements io.opentracing.Span {
 
-    private final Span.Builder builder;
+    private final long traceId;
+    private final long id;
+    private final Long parentId;
+    private final boolean shared;
+    private String name;
     private final Endpoint endpoint;
     private final Reporter<Span> reporter;
+    private final zipkin2.Endpoint v2Endpoint;
+    private final Reporter<zipkin2.Span> v2Reporter;
+    private final Span.Builder v1Builder;
     private final Timer timer;
     private final Map<String,String> baggage;
+    private final List<Map.Entry<String, Object>> tags;
+    private final List<Map.Entry<Long, String>> logs;
+    private ZipkinSpanContext context;
     private Instant error;
     private boolean isFinished;
     private String kind;
@@ -36,17 +54,69 @@ public class ZipkinSpan implements io.opentracing.Span {
     private Short peerPort;
     private Instant peerUpdated;
 
+    /**
+     * Reports in the v1 model, adding to the given builder, so anything already on it is kept.
+     * The builder holds the ids and name, and is only built once the span finishes, so it may still be unnamed here.
+     */
     public ZipkinSpan(final Span.Builder span, final Endpoint endpoint, final Reporter<Span> reporter, final Timer timer) {
-        this.builder = span;
+        this(span, 0, 0, null, false, null, endpoint, reporter, null, null, timer);
+    }
+
+    ZipkinSpan(
+        final long traceId,
+        final long id,
+        final Long parentId,
+        final boolean shared,
+        final String name,
+        final Endpoint endpoint,
+        final Reporter<Span> reporter,
+        final zipkin2.Endpoint v2Endpoint,
+        final Reporter<zipkin2.Span> v2Reporter,
+        final Timer timer
+    ) {
+        this(null, traceId, id, parentId, shared, name, endpoint, reporter, v2Endpoint, v2Reporter, timer);
+    }
+
+    private ZipkinSpan(
+        final Span.Builder v1Builder,
+        final long traceId,
+        final long id,
+        final Long parentId,
+        final boolean shared,
+        final String name,
+        final Endpoint endpoint,
+        final Reporter<Span> reporter,
+        final zipkin2.Endpoint v2Endpoint,
+        final Reporter<zipkin2.Span> v2Reporter,
+        final Timer timer
+    ) {
+        this.v1Builder = v1Builder;
+        this.traceId = traceId;
+        this.id = id;
+        this.parentId = parentId;
+        this.shared = shared;
+        this.name = name;
         this.endpoint = endpoint;
         this.reporter = reporter;
+        this.v2Endpoint = v2Endpoint;
+        this.v2Reporter = v2Reporter;
         this.timer = timer;
         baggage = new HashMap<>();
+        tags = new ArrayList<>();
+        logs = new ArrayList<>();
     }
 
     public SpanContext context() {
-        Span span = builder.build();
-        return new ZipkinSpanContext(span.id, span.parentId, span.traceId, baggage.entrySet());
+        // reused until baggage changes, so that its encoded propagation headers are too
+        if (context == null) {
+            if (v1Builder != null) {
+                Span span = v1Builder.build();
+                context = new ZipkinSpanContext(span.id, span.parentId, span.traceId, baggage.entrySet());
+            } else {
+                context = new ZipkinSpanContext(id, parentId, traceId, baggage.entrySet());
+            }
+        }
+        return context;
     }
 
     public void finish() {
@@ -58,91 +128,201 @@ public class ZipkinSpan implements io.opentracing.Span {
             isFinished = true;
 
             long startMicros = TimeUtil.epochMicros(timer.getStart());
-            builder.timestamp(startMicros).duration(finishMicros - startMicros);
-
-            final Endpoint peer;
-            if (peerPort != null || peerServiceName != null || peerIpv4 != null || peerIpv6 != null) {
-                Endpoint.Builder peerBuilder = Endpoint.builder().serviceName(peerServiceName == null ? "" : peerServiceName);
-                if (peerIpv4 != null) {
-                    peerBuilder.ipv4(peerIpv4);
-                }
-                if (peerIpv6 != null) {
-                    peerBuilder.ipv6(peerIpv6);
-                }
-                if (peerPort != null) {
-                    peerBuilder.port(peerPort);
-                }
-                peer = peerBuilder.build();
+            if (v2Reporter != null) {
+                v2Reporter.report(buildV2(startMicros, finishMicros));
             } else {
-                peer = null;
+                reporter.report(buildV1(startMicros, finishMicros));
             }
+        }
+    }
 
-            if (Tags.SPAN_KIND_CLIENT.equals(kind)) {
-                builder
-                    .addAnnotation(Annotation.builder()
-                        .endpoint(endpoint)
-                        .timestamp(startMicros)
-                        .value(Constants.CLIENT_SEND)
-                        .build()
-                    )
-                    .addAnnotation(Annotation.builder()
-                        .endpoint(endpoint)
-                        .timestamp(finishMicros)
-                        .value(Constants.CLIENT_RECV)
-                        .build()
-                    );
-                if (peer != null) {
-                    builder.addAnnotation(Annotation.builder()
-                        .endpoint(peer)
-                        .timestamp(TimeUtil.epochMicros(peerUpdated))
-                        .value(Constants.SERVER_ADDR)
-                        .build()
-                    );
-                }
-            } else if (Tags.SPAN_KIND_SERVER.equals(kind)) {
-                builder
-                    .addAnnotation(Annotation.builder()
-                        .endpoint(endpoint)
-                        .timestamp(startMicros)
-                        .value(Constants.SERVER_RECV)
-                        .build()
-                    )
-                    .addAnnotation(Annotation.builder()
-                        .endpoint(endpoint)
-                        .timestamp(finishMicros)
-                        .value(Constants.SERVER_SEND)
-                        .build()
-                    );
-                if (peer != null) {
-                    builder.addAnnotation(Annotation.builder()
-                        .endpoint(peer)
-                        .timestamp(TimeUtil.epochMicros(peerUpdated))
-                        .value(Constants.CLIENT_ADDR).build()
-                    );
-                }
-            } else if (kind != null) {
-                builder.addBinaryAnnotation(BinaryAnnotation.builder()
+    private boolean hasPeer() {
+        return peerPort != null || peerServiceName != null || peerIpv4 != null || peerIpv6 != null;
+    }
+
+    private Span buildV1(long startMicros, long finishMicros) {
+        Span.Builder builder = v1Builder != null
+            ? v1Builder
+            : Span.builder().traceId(traceId).id(id).parentId(parentId).name(name);
+        builder.timestamp(startMicros).duration(finishMicros - startMicros);
+
+        final Endpoint peer;
+        if (hasPeer()) {
+            Endpoint.Builder peerBuilder = Endpoint.builder().serviceName(peerServiceName == null ? "" : peerServiceName);
+            if (peerIpv4 != null) {
+                peerBuilder.ipv4(peerIpv4);
+            }
+            if (peerIpv6 != null) {
+                peerBuilder.ipv6(peerIpv6);
+            }
+            if (peerPort != null) {
+                peerBuilder.port(peerPort);
+            }
+            peer = peerBuilder.build();
+        } else {
+            peer = null;
+        }
+
+        if (Tags.SPAN_KIND_CLIENT.equals(kind)) {
+            builder
+                .addAnnotation(Annotation.builder()
                     .endpoint(endpoint)
-                    .key(Tags.SPAN_KIND.getKey())
-                    .type(BinaryAnnotation.Type.STRING)
-                    .value(kind)
+                    .timestamp(startMicros)
+                    .value(Constants.CLIENT_SEND)
+                    .build()
+                )
+                .addAnnotation(Annotation.builder()
+                    .endpoint(endpoint)
+                    .timestamp(finishMicros)
+                    .value(Constants.CLIENT_RECV)
                     .build()
                 );
+            if (peer != null) {
+                builder.addAnnotation(Annotation.builder()
+                    .endpoint(peer)
+                    .timestamp(TimeUtil.epochMicros(peerUpdated))
+                    .value(Constants.SERVER_ADDR)
+                    .build()
+                );
+            }
+        } else if (Tags.SPAN_KIND_SERVER.equals(kind)) {
+            builder
+                .addAnnotation(Annotation.builder()
+                    .endpoint(endpoint)
+                    .timestamp(startMicros)
+                    .value(Constants.SERVER_RECV)
+                    .build()
+                )
+                .addAnnotation(Annotation.builder()
+                    .endpoint(endpoint)
+                    .timestamp(finishMicros)
+                    .value(Constants.SERVER_SEND)
+                    .build()
+                );
+            if (peer != null) {
+                builder.addAnnotation(Annotation.builder()
+                    .endpoint(peer)
+                    .timestamp(TimeUtil.epochMicros(peerUpdated))
+                    .value(Constants.CLIENT_ADDR).build()
+                );
+            }
+        } else if (kind != null) {
+            builder.addBinaryAnnotation(BinaryAnnotation.builder()
+                .endpoint(endpoint)
+                .key(Tags.SPAN_KIND.getKey())
+                .type(BinaryAnnotation.Type.STRING)
+                .value(kind)
+                .build()
+            );
+        } else {
+            builder.addAnnotation(Annotation.builder().endpoint(endpoint).value(Constants.LOCAL_COMPONENT).build());
+        }
+
+        if (error != null) {
+            Annotation annotation = Annotation.builder()
+                .endpoint(endpoint)
+                .timestamp(TimeUtil.epochMicros(error))
+                .value(Constants.ERROR)
+                .build();
+            builder.addAnnotation(annotation);
+        }
+
+        for (Map.Entry<Long, String> log : logs) {
+            builder.addAnnotation(Annotation.create(log.getKey(), log.getValue(), endpoint));
+        }
+        for (Map.Entry<String, Object> tag : tags) {
+            builder.addBinaryAnnotation(binaryAnnotation(tag.getKey(), tag.getValue()));
+        }
+
+        return builder.build();
+    }
+
+    private BinaryAnnotation binaryAnnotation(String key, Object value) {
+        BinaryAnnotation.Builder annotationBuilder = BinaryAnnotation.builder().endpoint(endpoint).key(key);
+        if (value instanceof String) {
+            annotationBuilder.type(BinaryAnnotation.Type.STRING).value((String)value);
+        } else if (value instanceof Boolean) {
+            final byte[] bytes = new byte[]{(Boolean)value ? (byte) 1 : (byte) 0};
+            annotationBuilder.type(BinaryAnnotation.Type.BOOL).value(bytes);
+        } else if (value instanceof Number) {
+            final Number number = (Number)value;
+            final ByteBuffer bytes;
+            if (number instanceof Byte || number instanceof Short) {
+                bytes = ByteBuffer.allocate(Short.BYTES).putShort(number.shortValue());
+                annotationBuilder.type(BinaryAnnotation.Type.I16);
+            } else if (number instanceof Integer || number instanceof AtomicInteger) {
+                bytes = ByteBuffer.allocate(Integer.BYTES).putInt(number.intValue());
+                annotationBuilder.type(BinaryAnnotation.Type.I32);
+            } else if (number instanceof Long || number instanceof AtomicLong || number instanceof BigInteger) {
+                bytes = ByteBuffer.allocate(Long.BYTES).putLong(number.longValue());
+                annotationBuilder.type(BinaryAnnotation.Type.I64);
             } else {
-                builder.addAnnotation(Annotation.builder().endpoint(endpoint).value(Constants.LOCAL_COMPONENT).build());
+                bytes = ByteBuffer.allocate(Double.BYTES).putDouble(number.doubleValue());
+                annotationBuilder.type(BinaryAnnotation.Type.DOUBLE);
             }
+            annotationBuilder.value(bytes.array());
+        } else {
+            throw new IllegalArgumentException("Unsupported tag value: " + value);
+        }
+        return annotationBuilder.build();
+    }
 
-            if (error != null) {
-                Annotation annotation = Annotation.builder()
-                    .endpoint(endpoint)
-                    .timestamp(TimeUtil.epochMicros(error))
-                    .value(Constants.ERROR)
-                    .build();
-                builder.addAnnotation(annotation);
+    private zipkin2.Span buildV2(long startMicros, long finishMicros) {
+        zipkin2.Span.Builder builder = zipkin2.Span.newBuilder()
+            .traceId(0, traceId)
+            .id(id)
+            .name(name)
+            .timestamp(startMicros)
+            .duration(finishMicros - startMicros)
+            .localEndpoint(v2Endpoint);
+        if (parentId != null) {
+            builder.parentId(parentId);
+        }
+
+        final zipkin2.Span.Kind v2Kind;
+        if (Tags.SPAN_KIND_CLIENT.equals(kind)) {
+            v2Kind = zipkin2.Span.Kind.CLIENT;
+        } else if (Tags.SPAN_KIND_SERVER.equals(kind)) {
+            v2Kind = zipkin2.Span.Kind.SERVER;
+            if (shared) {
+                builder.shared(true);
+            }
+        } else {
+            v2Kind = null;
+            if (kind != null) {
+                builder.putTag(Tags.SPAN_KIND.getKey(), kind);
+            }
+        }
+        if (v2Kind != null) {
+            builder.kind(v2Kind);
+            if (hasPeer()) {
+                zipkin2.Endpoint.Builder peerBuilder = zipkin2.Endpoint.newBuilder().serviceName(peerServiceName);
+                if (peerIpv4 != null) {
+                    peerBuilder.parseIp(ByteBuffer.allocate(Integer.BYTES).putInt(peerIpv4).array());
+                }
+                if (peerIpv6 != null) {
+                    peerBuilder.parseIp(peerIpv6);
+                }
+                if (peerPort != null) {
+                    peerBuilder.port(peerPort & 0xffff);
+                }
+                builder.remoteEndpoint(peerBuilder.build());
             }
+        }
 
-            reporter.report(builder.build());
+        if (error != null) {
+            builder.putTag(Constants.ERROR, "true");
+        }
+
+        for (Map.Entry<Long, String> log : logs) {
+            builder.addAnnotation(log.getKey(), log.getValue());
+        }
+        // a tag set more than once keeps its last value, since v2 tags are a map
+        for (Map.Entry<String, Object> tag : tags) {
+            builder.putTag(tag.getKey(), String.valueOf(tag.getValue()));
         }
+
+        return builder.build();
     }
 
     public void close() {
@@ -166,7 +346,7 @@ public class ZipkinSpan implements io.opentracing.Span {
                 peerServiceName = value;
                 peerUpdated = timer.getEnd();
             }
-            builder.addBinaryAnnotation(BinaryAnnotation.builder().endpoint(endpoint).key(key).type(BinaryAnnotation.Type.STRING).value(value).build());
+            tags.add(new AbstractMap.SimpleImmutableEntry<>(key, Objects.requireNonNull(value, "value")));
         }
         return this;
     }
@@ -175,8 +355,7 @@ public class ZipkinSpan implements io.opentracing.Span {
         if (key.equals(Tags.ERROR.getKey())) {
             error = value ? timer.getEnd() : null;
         } else {
-            final byte[] bytes = new byte[]{value ? (byte) 1 : (byte) 0};
-            builder.addBinaryAnnotation(BinaryAnnotation.builder().endpoint(endpoint).key(key).type(BinaryAnnotation.Type.BOOL).value(bytes).build());
+            tags.add(new AbstractMap.SimpleImmutableEntry<>(key, value));
         }
         return this;
     }
@@ -189,22 +368,7 @@ public class ZipkinSpan implements io.opentracing.Span {
             peerPort = value.shortValue();
             peerUpdated = timer.getEnd();
         } else {
-            BinaryAnnotation.Builder annotationBuilder = BinaryAnnotation.builder().key(key);
-            final ByteBuffer bytes;
-            if (value instanceof Byte || value instanceof Short) {
-                bytes = ByteBuffer.allocate(Short.BYTES).putShort(value.shortValue());
-                annotationBuilder.type(BinaryAnnotation.Type.I16);
-            } else if (value instanceof Integer || value instanceof AtomicInteger) {
-                bytes = ByteBuffer.allocate(Integer.BYTES).putInt(value.intValue());
-                annotationBuilder.type(BinaryAnnotation.Type.I32);
-            } else if (value instanceof Long || value instanceof AtomicLong || value instanceof BigInteger) {
-                bytes = ByteBuffer.allocate(Long.BYTES).putLong(value.longValue());
-                annotationBuilder.type(BinaryAnnotation.Type.I64);
-            } else {
-                bytes = ByteBuffer.allocate(Double.BYTES).putDouble(value.doubleValue());
-                annotationBuilder.type(BinaryAnnotation.Type.DOUBLE);
-            }
-            builder.addBinaryAnnotation(annotationBuilder.endpoint(endpoint).value(bytes.array()).build());
+            tags.add(new AbstractMap.SimpleImmutableEntry<>(key, Objects.requireNonNull(value, "value")));
         }
         return this;
     }
@@ -225,7 +389,7 @@ public class ZipkinSpan implements io.opentracing.Span {
     }
 
     public io.opentracing.Span log(long timestampMicroseconds, String event) {
-        builder.addAnnotation(Annotation.builder().endpoint(endpoint).timestamp(timestampMicroseconds).value(event).build());
+        logs.add(new AbstractMap.SimpleImmutableEntry<>(timestampMicroseconds, event));
         return this;
     }
 
@@ -241,6 +405,7 @@ public class ZipkinSpan implements io.opentracing.Span {
 
     public io.opentracing.Span setBaggageItem(String key, String value) {
         baggage.put(key, value);
+        context = null;
         return this;
     }
 
@@ -249,7 +414,11 @@ public class ZipkinSpan implements io.opentracing.Span {
     }
 
     public io.opentracing.Span setOperationName(String operationName) {
-        builder.name(operationName);
+        if (v1Builder != null) {
+            v1Builder.name(operationName);
+        } else {
+            name = operationName;
+        }
         return this;
     }
 
@@ -21,6 +21,8 @@ public class ZipkinSpanBuilder implements Tracer.SpanBuilder {
     private final Endpoint endpoint;
     private ZipkinSpanContext parent;
     private final Reporter<Span> reporter;
+    private final zipkin2.Endpoint v2Endpoint;
+    private final Reporter<zipkin2.Span> v2Reporter;
     private final Map<String, String> baggage;
     private final Map<String, Consumer<io.opentracing.Span>> tags;
     private final Random random;
@@ -28,9 +30,22 @@ public class ZipkinSpanBuilder implements Tracer.SpanBuilder {
     private String kind;
 
     public ZipkinSpanBuilder(String name, Endpoint endpoint, Random random, Reporter<Span> reporter) {
+        this(name, endpoint, random, reporter, null, null);
+    }
+
+    ZipkinSpanBuilder(
+        String name,
+        Endpoint endpoint,
+        Random random,
+        Reporter<Span> reporter,
+        zipkin2.Endpoint v2Endpoint,
+        Reporter<zipkin2.Span> v2Reporter
+    ) {
         this.name = name;
         this.endpoint = endpoint;
         this.reporter = reporter;
+        this.v2Endpoint = v2Endpoint;
+        this.v2Reporter = v2Reporter;
         this.random = random;
         this.baggage = new HashMap<>();
         tags = new HashMap<>();
@@ -82,20 +97,32 @@ public class ZipkinSpanBuilder implements Tracer.SpanBuilder {
     }
 
     public io.opentracing.Span start() {
-        Span.Builder builder = Span.builder()
-            .name(name)
-            .traceId(parent == null ? random.nextLong() : parent.getTraceId());
+        final long traceId = parent == null ? random.nextLong() : parent.getTraceId();
+        final long id;
+        final Long parentId;
+        final boolean shared;
         if (parent != null && Tags.SPAN_KIND_SERVER.equals(kind)) {
             // if server side, don't create new Zipkin span; re-use existing, for two-sided span
-            builder.id(parent.getId());
-            builder.parentId(parent.getParentId());
+            id = parent.getId();
+            parentId = parent.getParentId();
+            shared = true;
         } else {
-            builder.id(random.nextLong());
-            if (parent != null) {
-                builder.parentId(parent.getId());
-            }
+            id = random.nextLong();
+            parentId = parent == null ? null : parent.getId();
+            shared = false;
         }
-        io.opentracing.Span span = new ZipkinSpan(builder, endpoint, reporter, start == null ? new Timer() : new Timer(start));
+        io.opentracing.Span span = new ZipkinSpan(
+            traceId,
+            id,
+            parentId,
+            shared,
+            name,
+            endpoint,
+            reporter,
+            v2Endpoint,
+            v2Reporter,
+            start == null ? new Timer() : new Timer(start)
+        );
         for (Map.Entry<String, Consumer<io.opentracing.Span>> tag : tags.entrySet()) {
             tag.getValue().accept(span);
         }
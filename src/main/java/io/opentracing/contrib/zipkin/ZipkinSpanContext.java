@@ -1,20 +1,37 @@
 package io.opentracing.contrib.zipkin;
 
 import io.opentracing.SpanContext;
+import io.opentracing.propagation.TextMap;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.function.UnaryOperator;
 
 public final class ZipkinSpanContext implements SpanContext {
 
     private final long id;
     private final Long parentId;
     private final long traceId;
-    private final Iterable<Map.Entry<String, String>> baggageItems;
+    private final List<Map.Entry<String, String>> baggageItems;
+    // encoded lazily for up to two propagation formats, possibly more than once under a race, which is harmless
+    // since EncodedHeaders is immutable
+    private EncodedHeaders headers;
+    private EncodedHeaders otherHeaders;
 
+    /**
+     * The baggage items are copied, since headers encoded from them are reused for the life of the context.
+     */
     public ZipkinSpanContext(long id, Long parentId, long traceId, Iterable<Map.Entry<String, String>> baggageItems) {
         this.id = id;
         this.parentId = parentId;
         this.traceId = traceId;
-        this.baggageItems = baggageItems;
+        final List<Map.Entry<String, String>> baggageCopy = new ArrayList<>();
+        for (Map.Entry<String, String> baggageItem : baggageItems) {
+            baggageCopy.add(new AbstractMap.SimpleImmutableEntry<>(baggageItem));
+        }
+        this.baggageItems = Collections.unmodifiableList(baggageCopy);
     }
 
     public long getId() {
@@ -33,4 +50,26 @@ public final class ZipkinSpanContext implements SpanContext {
         return baggageItems;
     }
 
+    /**
+     * Puts the B3 trace identifiers and baggage of this context into the carrier, with every name prefixed, and
+     * baggage encoded, as the propagation format requires. They are encoded once per context and format, since the
+     * same context is often injected into many requests, as long as the format passes the same encoder each time.
+     */
+    public void injectB3(TextMap carrier, String prefix, UnaryOperator<String> encoder) {
+        EncodedHeaders encoded = headers;
+        if (encoded == null || !encoded.encodedWith(prefix, encoder)) {
+            final EncodedHeaders other = otherHeaders;
+            if (other != null && other.encodedWith(prefix, encoder)) {
+                encoded = other;
+            } else {
+                if (encoded != null) {
+                    otherHeaders = encoded;
+                }
+                encoded = new EncodedHeaders(this, prefix, encoder);
+                headers = encoded;
+            }
+        }
+        encoded.inject(carrier);
+    }
+
 }
@@ -28,6 +28,8 @@ public class ZipkinTracer implements Tracer {
 
     private final Endpoint endpoint;
     private final Reporter<Span> reporter;
+    private final zipkin2.Endpoint v2Endpoint;
+    private final Reporter<zipkin2.Span> v2Reporter;
     private final Random random;
     private final Map<Format, BiConsumer> injectors;
     private final Map<Format, Function> extractors;
@@ -68,6 +70,22 @@ public class ZipkinTracer implements Tracer {
             endpoint = endpointBuilder.build();
         }
         reporter = builder.reporter;
+        v2Reporter = builder.v2Reporter;
+        if (v2Reporter != null) {
+            final zipkin2.Endpoint.Builder v2EndpointBuilder = zipkin2.Endpoint.newBuilder().serviceName(endpoint.serviceName);
+            if (endpoint.ipv4 != 0) {
+                v2EndpointBuilder.parseIp(ByteBuffer.allocate(Integer.BYTES).putInt(endpoint.ipv4).array());
+            }
+            if (endpoint.ipv6 != null) {
+                v2EndpointBuilder.parseIp(endpoint.ipv6);
+            }
+            if (endpoint.port != null) {
+                v2EndpointBuilder.port(endpoint.port & 0xffff);
+            }
+            v2Endpoint = v2EndpointBuilder.build();
+        } else {
+            v2Endpoint = null;
+        }
         if (builder.random != null) {
             random = builder.random;
         } else {
@@ -78,7 +96,7 @@ public class ZipkinTracer implements Tracer {
     }
 
     public SpanBuilder buildSpan(String name) {
-        return new ZipkinSpanBuilder(name, endpoint, random, reporter);
+        return new ZipkinSpanBuilder(name, endpoint, random, reporter, v2Endpoint, v2Reporter);
     }
 
     @SuppressWarnings("unchecked")
@@ -95,8 +113,16 @@ public class ZipkinTracer implements Tracer {
         return new Builder(reporter);
     }
 
+    /**
+     * A builder for a tracer that reports spans in the Zipkin v2 model.
+     */
+    public static Builder v2Builder(Reporter<zipkin2.Span> reporter) {
+        return new Builder(null).withV2Reporter(reporter);
+    }
+
     public static class Builder {
         final Reporter<Span> reporter;
+        Reporter<zipkin2.Span> v2Reporter;
         Endpoint endpoint;
         Random random;
         Map<Format, BiConsumer<SpanContext, ?>> injectors;
@@ -118,6 +144,15 @@ public class ZipkinTracer implements Tracer {
             return this;
         }
 
+        /**
+         * Build finished spans directly in the Zipkin v2 model and report them here, instead of to the v1 reporter.
+         * The v2 model does not repeat the local endpoint per annotation and tag, so spans are much smaller.
+         */
+        public Builder withV2Reporter(Reporter<zipkin2.Span> v2Reporter) {
+            this.v2Reporter = v2Reporter;
+            return this;
+        }
+
         public Builder withRandom(Random random) {
             this.random = random;
             return this;
@@ -134,6 +169,9 @@ public class ZipkinTracer implements Tracer {
         }
 
         public ZipkinTracer build() {
+            if (reporter == null && v2Reporter == null) {
+                throw new IllegalStateException("A v1 or v2 reporter is required");
+            }
             return new ZipkinTracer(this);
         }
 
@@ -12,6 +12,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 public final class HttpHeadersPropagation {
 
@@ -36,18 +37,12 @@ public final class HttpHeadersPropagation {
         }
     }
 
+    // the same instance on every inject, so that the context reuses the headers it encoded
+    private static final UnaryOperator<String> baggageEncoder = HttpHeadersPropagation::encode;
+
     public static BiConsumer<SpanContext, TextMap> injector = (spanContext, carrier) -> {
         if (spanContext instanceof ZipkinSpanContext) {
-            ZipkinSpanContext spanContext1 = (ZipkinSpanContext)spanContext;
-            carrier.put("X-B3-TraceId", Long.toHexString(spanContext1.getTraceId()));
-            carrier.put("X-B3-SpanId", Long.toHexString(spanContext1.getId()));
-            Long parentId = spanContext1.getParentId();
-            if (parentId != null) {
-                carrier.put("X-B3-ParentSpanId", Long.toHexString(parentId));
-            }
-            for (Map.Entry<String, String> baggageItem : spanContext.baggageItems()) {
-                carrier.put("X-B3-Baggage-" + encode(baggageItem.getKey()), encode(baggageItem.getValue()));
-            }
+            ((ZipkinSpanContext)spanContext).injectB3(carrier, "X-B3-", baggageEncoder);
         }
     };
 
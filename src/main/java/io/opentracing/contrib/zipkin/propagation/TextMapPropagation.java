@@ -8,24 +8,19 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 public final class TextMapPropagation {
 
     private TextMapPropagation() {
     }
 
+    // the same instance on every inject, so that the context reuses the headers it encoded
+    private static final UnaryOperator<String> baggageEncoder = UnaryOperator.identity();
+
     public static BiConsumer<SpanContext, TextMap> injector = (spanContext, carrier) -> {
         if (spanContext instanceof ZipkinSpanContext) {
-            ZipkinSpanContext spanContext1 = (ZipkinSpanContext)spanContext;
-            carrier.put("TraceId", Long.toHexString(spanContext1.getTraceId()));
-            carrier.put("SpanId", Long.toHexString(spanContext1.getId()));
-            Long parentId = spanContext1.getParentId();
-            if (parentId != null) {
-                carrier.put("ParentSpanId", Long.toHexString(parentId));
-            }
-            for (Map.Entry<String, String> baggageItem : spanContext.baggageItems()) {
-                carrier.put("Baggage-" + baggageItem.getKey(), baggageItem.getValue());
-            }
+            ((ZipkinSpanContext)spanContext).injectB3(carrier, "", baggageEncoder);
         }
     };
 
@@ -0,0 +1,396 @@
+package io.opentracing.contrib.zipkin.reporter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import zipkin.reporter.Callback;
+import zipkin.reporter.Encoding;
+import zipkin.reporter.Sender;
+
+/**
+ * Posts gzip-compressed span messages to a Zipkin collector over HTTP.
+ * Deflaters and output buffers are pooled and reused across messages, and spans are fed to the deflater directly
+ * instead of first being joined into an uncompressed message.
+ * The compression level adapts per message to keep compression time within a budget per kilobyte of input: it is
+ * lowered when a message compresses slower than the budget, and raised again while it compresses well under it.
+ * Only compression time is controlled; the time to post a message depends mostly on the network and the collector.
+ */
+public final class GzipHttpSender implements Sender {
+
+    private static final byte[] gzipHeader = new byte[]{0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final byte[] jsonStart = new byte[]{'['};
+    private static final byte[] jsonSeparator = new byte[]{','};
+    private static final byte[] jsonEnd = new byte[]{']'};
+    private static final byte thriftStruct = 12;
+    // smaller messages are timed too coarsely to adjust the level by
+    private static final int adaptiveMinBytes = 16 * 1024;
+    private static final int initialBufferBytes = 8 * 1024;
+    // larger output buffers are replaced before pooling, so that one large message doesn't pin its size for good
+    private static final int maxPooledBufferBytes = 256 * 1024;
+
+    private final URL endpoint;
+    private final Encoding encoding;
+    private final int messageMaxBytes;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int minCompressionLevel;
+    private final int maxCompressionLevel;
+    private final long compressionBudgetNanosPerKilobyte;
+    private final AtomicInteger compressionLevel;
+    private final Queue<Compressor> compressors;
+    private volatile boolean closed;
+
+    private GzipHttpSender(Builder builder) {
+        endpoint = builder.endpoint;
+        encoding = builder.encoding;
+        messageMaxBytes = builder.messageMaxBytes;
+        connectTimeout = builder.connectTimeout;
+        readTimeout = builder.readTimeout;
+        minCompressionLevel = builder.minCompressionLevel;
+        maxCompressionLevel = builder.maxCompressionLevel;
+        compressionBudgetNanosPerKilobyte = builder.compressionBudgetNanosPerKilobyte;
+        compressionLevel = new AtomicInteger(builder.compressionLevel);
+        compressors = new ConcurrentLinkedQueue<>();
+    }
+
+    public Encoding encoding() {
+        return encoding;
+    }
+
+    public int messageMaxBytes() {
+        return messageMaxBytes;
+    }
+
+    public int messageSizeInBytes(List<byte[]> spans) {
+        return encoding.listSizeInBytes(spans);
+    }
+
+    /**
+     * The level the next message will be compressed with.
+     */
+    public int compressionLevel() {
+        return compressionLevel.get();
+    }
+
+    public void sendSpans(List<byte[]> spans, Callback callback) {
+        send(spans, callback, true);
+    }
+
+    private void send(List<byte[]> spans, Callback callback, boolean adaptive) {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+        Compressor compressor = compressors.poll();
+        if (compressor == null) {
+            compressor = new Compressor();
+        }
+        try {
+            final int level = compressionLevel.get();
+            final long start = System.nanoTime();
+            compressor.compress(level, encoding, spans);
+            if (adaptive && compressor.inputLength >= adaptiveMinBytes) {
+                adjustCompressionLevel(level, System.nanoTime() - start, compressor.inputLength);
+            }
+            post(compressor.buffer, compressor.length);
+        } catch (Throwable e) {
+            callback.onError(e);
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            return;
+        } finally {
+            release(compressor);
+        }
+        callback.onComplete();
+    }
+
+    private void release(Compressor compressor) {
+        if (compressor.buffer.length > maxPooledBufferBytes) {
+            compressor.buffer = new byte[initialBufferBytes];
+        }
+        compressors.offer(compressor);
+        // close() may have drained the pool between the check and the offer, so drain it again
+        if (closed) {
+            endCompressors();
+        }
+    }
+
+    private void endCompressors() {
+        Compressor compressor;
+        while ((compressor = compressors.poll()) != null) {
+            compressor.deflater.end();
+        }
+    }
+
+    private void adjustCompressionLevel(int level, long compressionNanos, int inputBytes) {
+        final long budgetNanos = compressionBudgetNanosPerKilobyte * inputBytes / 1024;
+        if (compressionNanos > budgetNanos) {
+            if (level > minCompressionLevel) {
+                compressionLevel.compareAndSet(level, level - 1);
+            }
+        } else if (compressionNanos < budgetNanos / 2) {
+            if (level < maxCompressionLevel) {
+                compressionLevel.compareAndSet(level, level + 1);
+            }
+        }
+    }
+
+    private void post(byte[] body, int length) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", encoding == Encoding.THRIFT ? "application/x-thrift" : "application/json");
+        connection.setRequestProperty("Content-Encoding", "gzip");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body, 0, length);
+        }
+        final int status = connection.getResponseCode();
+        final InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            // drain so the connection can be kept alive
+            try {
+                while (in.read() != -1) {
+                }
+            } finally {
+                in.close();
+            }
+        }
+        if (status >= 300) {
+            throw new IOException(String.format("POST %s returned %d", endpoint, status));
+        }
+    }
+
+    public CheckResult check() {
+        final Throwable[] error = new Throwable[1];
+        try {
+            send(Collections.emptyList(), new Callback() {
+                public void onComplete() {
+                }
+
+                public void onError(Throwable t) {
+                    error[0] = t;
+                }
+            }, false);
+        } catch (RuntimeException e) {
+            error[0] = e;
+        }
+        if (error[0] == null) {
+            return CheckResult.OK;
+        }
+        return CheckResult.failed(error[0] instanceof Exception ? (Exception) error[0] : new RuntimeException(error[0]));
+    }
+
+    public void close() {
+        closed = true;
+        endCompressors();
+    }
+
+    public static Builder builder(URL endpoint) {
+        return new Builder(endpoint);
+    }
+
+    /**
+     * A reusable deflater and output buffer, which writes the gzip framing around raw deflate output itself.
+     * Spans are copied into a staging buffer first, since deflating each small span separately is several times slower.
+     */
+    private static final class Compressor {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        final CRC32 crc = new CRC32();
+        final byte[] thriftHeader = new byte[5];
+        final byte[] staging = new byte[64 * 1024];
+        int stagingLength;
+        byte[] buffer = new byte[initialBufferBytes];
+        int length;
+        int inputLength;
+
+        void compress(int level, Encoding encoding, List<byte[]> spans) {
+            deflater.reset();
+            deflater.setLevel(level);
+            crc.reset();
+            length = 0;
+            inputLength = 0;
+            stagingLength = 0;
+
+            ensureCapacity(gzipHeader.length);
+            System.arraycopy(gzipHeader, 0, buffer, 0, gzipHeader.length);
+            length = gzipHeader.length;
+
+            if (encoding == Encoding.THRIFT) {
+                final int size = spans.size();
+                thriftHeader[0] = thriftStruct;
+                thriftHeader[1] = (byte) (size >>> 24);
+                thriftHeader[2] = (byte) (size >>> 16);
+                thriftHeader[3] = (byte) (size >>> 8);
+                thriftHeader[4] = (byte) size;
+                input(thriftHeader);
+                for (byte[] span : spans) {
+                    input(span);
+                }
+            } else {
+                input(jsonStart);
+                for (int i = 0; i < spans.size(); i++) {
+                    if (i > 0) {
+                        input(jsonSeparator);
+                    }
+                    input(spans.get(i));
+                }
+                input(jsonEnd);
+            }
+            flushStaging();
+
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain();
+            }
+
+            ensureCapacity(8);
+            writeIntLe((int) crc.getValue());
+            writeIntLe(inputLength);
+        }
+
+        private void input(byte[] bytes) {
+            if (staging.length - stagingLength < bytes.length) {
+                flushStaging();
+            }
+            if (bytes.length > staging.length) {
+                deflate(bytes, bytes.length);
+            } else {
+                System.arraycopy(bytes, 0, staging, stagingLength, bytes.length);
+                stagingLength += bytes.length;
+            }
+        }
+
+        private void flushStaging() {
+            if (stagingLength > 0) {
+                deflate(staging, stagingLength);
+                stagingLength = 0;
+            }
+        }
+
+        private void deflate(byte[] bytes, int bytesLength) {
+            crc.update(bytes, 0, bytesLength);
+            inputLength += bytesLength;
+            deflater.setInput(bytes, 0, bytesLength);
+            while (!deflater.needsInput()) {
+                drain();
+            }
+        }
+
+        private void drain() {
+            ensureCapacity(512);
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+
+        private void ensureCapacity(int bytes) {
+            if (buffer.length - length < bytes) {
+                byte[] newBuffer = new byte[Math.max(buffer.length * 2, length + bytes)];
+                System.arraycopy(buffer, 0, newBuffer, 0, length);
+                buffer = newBuffer;
+            }
+        }
+
+        private void writeIntLe(int value) {
+            buffer[length++] = (byte) value;
+            buffer[length++] = (byte) (value >>> 8);
+            buffer[length++] = (byte) (value >>> 16);
+            buffer[length++] = (byte) (value >>> 24);
+        }
+    }
+
+    public static class Builder {
+        final URL endpoint;
+        Encoding encoding;
+        int messageMaxBytes;
+        int connectTimeout;
+        int readTimeout;
+        int compressionLevel;
+        int minCompressionLevel;
+        int maxCompressionLevel;
+        long compressionBudgetNanosPerKilobyte;
+
+        public Builder(URL endpoint) {
+            this.endpoint = endpoint;
+            encoding = Encoding.JSON;
+            messageMaxBytes = 5 * 1024 * 1024;
+            connectTimeout = (int) TimeUnit.SECONDS.toMillis(10);
+            readTimeout = (int) TimeUnit.SECONDS.toMillis(60);
+            compressionLevel = 6;
+            minCompressionLevel = Deflater.BEST_SPEED;
+            maxCompressionLevel = Deflater.BEST_COMPRESSION;
+            compressionBudgetNanosPerKilobyte = TimeUnit.MICROSECONDS.toNanos(20);
+        }
+
+        public Builder withEncoding(Encoding encoding) {
+            this.encoding = encoding;
+            return this;
+        }
+
+        /**
+         * Maximum size of a message before compression.
+         */
+        public Builder withMessageMaxBytes(int messageMaxBytes) {
+            this.messageMaxBytes = messageMaxBytes;
+            return this;
+        }
+
+        public Builder withConnectTimeout(long timeout, TimeUnit unit) {
+            this.connectTimeout = (int) unit.toMillis(timeout);
+            return this;
+        }
+
+        public Builder withReadTimeout(long timeout, TimeUnit unit) {
+            this.readTimeout = (int) unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * The initial level, which adapts within the given bounds, all from 0 to 9.
+         * Set all three to the same value for a fixed level.
+         */
+        public Builder withCompressionLevel(int level, int minLevel, int maxLevel) {
+            this.compressionLevel = level;
+            this.minCompressionLevel = minLevel;
+            this.maxCompressionLevel = maxLevel;
+            return this;
+        }
+
+        /**
+         * How long compressing each kilobyte of a message may take before the level is lowered.
+         */
+        public Builder withCompressionBudgetPerKilobyte(long budget, TimeUnit unit) {
+            this.compressionBudgetNanosPerKilobyte = unit.toNanos(budget);
+            return this;
+        }
+
+        public GzipHttpSender build() {
+            if (Deflater.NO_COMPRESSION > minCompressionLevel
+                || minCompressionLevel > compressionLevel
+                || compressionLevel > maxCompressionLevel
+                || maxCompressionLevel > Deflater.BEST_COMPRESSION) {
+                throw new IllegalArgumentException(String.format(
+                    "Compression levels must satisfy %d <= min <= level <= max <= %d, found min %d, level %d, max %d",
+                    Deflater.NO_COMPRESSION,
+                    Deflater.BEST_COMPRESSION,
+                    minCompressionLevel,
+                    compressionLevel,
+                    maxCompressionLevel
+                ));
+            }
+            return new GzipHttpSender(this);
+        }
+    }
+
+}
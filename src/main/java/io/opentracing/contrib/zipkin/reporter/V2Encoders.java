@@ -0,0 +1,27 @@
+package io.opentracing.contrib.zipkin.reporter;
+
+import zipkin.reporter.Encoder;
+import zipkin.reporter.Encoding;
+import zipkin2.Span;
+import zipkin2.codec.SpanBytesEncoder;
+
+/**
+ * Encoders for reporting Zipkin v2 spans with an {@link zipkin.reporter.AsyncReporter}.
+ * The sender must post to a v2 endpoint, e.g. /api/v2/spans.
+ */
+public final class V2Encoders {
+
+    private V2Encoders() {
+    }
+
+    public static final Encoder<Span> JSON = new Encoder<Span>() {
+        public Encoding encoding() {
+            return Encoding.JSON;
+        }
+
+        public byte[] encode(Span span) {
+            return SpanBytesEncoder.JSON_V2.encode(span);
+        }
+    };
+
+}